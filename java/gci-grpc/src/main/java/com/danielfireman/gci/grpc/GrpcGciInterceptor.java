@@ -0,0 +1,85 @@
+package com.danielfireman.gci.grpc;
+
+import com.danielfireman.gci.GarbageCollectorControlInterceptor;
+import com.danielfireman.gci.ShedResponse;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * gRPC server interceptor that uses {@link GarbageCollectorControlInterceptor} to control garbage
+ * collection and decide whether to shed calls.
+ * <p>
+ * A call (streaming or not) is accounted as in flight until it is completed or cancelled. Shed
+ * calls are closed with {@code UNAVAILABLE} and carry a {@code grpc-retry-pushback-ms} trailer, as per
+ * <a href="https://github.com/grpc/proposal/blob/master/A6-client-retries.md">gRFC A6</a>.
+ *
+ * @author danielfireman
+ * @see GarbageCollectorControlInterceptor
+ */
+public class GrpcGciInterceptor implements ServerInterceptor {
+    static final Metadata.Key<String> RETRY_PUSHBACK_KEY =
+            Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Status SHED_STATUS =
+            Status.UNAVAILABLE.withDescription("Server is shedding load due to garbage collection");
+
+    private GarbageCollectorControlInterceptor gci;
+
+    public GrpcGciInterceptor(GarbageCollectorControlInterceptor gci) {
+        System.out.println("Garbage Collector Control Interceptor activated.");
+        this.gci = gci;
+    }
+
+    /**
+     * Creates a new {@code GrpcGciInterceptor} with default parameters
+     * @see com.danielfireman.gci.GarbageCollectorControlInterceptor#GarbageCollectorControlInterceptor()
+     */
+    public GrpcGciInterceptor() {
+        this(new GarbageCollectorControlInterceptor());
+    }
+
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call,
+            Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+        ShedResponse shedResponse = gci.before();
+        if (shedResponse.shouldShed) {
+            gci.after(shedResponse);
+            Metadata trailers = new Metadata();
+            trailers.put(RETRY_PUSHBACK_KEY, Long.toString(shedResponse.unavailabilityDuration.toMillis()));
+            call.close(SHED_STATUS, trailers);
+            return new ServerCall.Listener<ReqT>() {
+            };
+        }
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(call, headers);
+        } catch (RuntimeException e) {
+            gci.after(shedResponse);
+            throw e;
+        }
+        // The transport calls exactly one of onComplete or onCancel when the call is over.
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+            @Override
+            public void onComplete() {
+                try {
+                    super.onComplete();
+                } finally {
+                    gci.after(shedResponse);
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                try {
+                    super.onCancel();
+                } finally {
+                    gci.after(shedResponse);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,246 @@
+package com.danielfireman.gci.grpc;
+
+import com.danielfireman.gci.CountingInterceptor;
+import com.danielfireman.gci.GarbageCollectorControlInterceptor;
+import com.danielfireman.gci.TestInterceptors;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GrpcGciInterceptorTest {
+
+    private static final MethodDescriptor.Marshaller<String> STRING_MARSHALLER = new MethodDescriptor.Marshaller<String>() {
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public String parse(InputStream stream) {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[256];
+                for (int n; (n = stream.read(buf)) != -1; ) out.write(buf, 0, n);
+                return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+    private static final MethodDescriptor<String, String> ECHO = MethodDescriptor.<String, String>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName("gci.Test/Echo")
+            .setRequestMarshaller(STRING_MARSHALLER)
+            .setResponseMarshaller(STRING_MARSHALLER)
+            .build();
+    private static final MethodDescriptor<String, String> CONCAT = MethodDescriptor.<String, String>newBuilder()
+            .setType(MethodDescriptor.MethodType.CLIENT_STREAMING)
+            .setFullMethodName("gci.Test/Concat")
+            .setRequestMarshaller(STRING_MARSHALLER)
+            .setResponseMarshaller(STRING_MARSHALLER)
+            .build();
+
+    private CountingInterceptor gci;
+    private Server server;
+    private ManagedChannel channel;
+    private CountDownLatch streamReceived;
+
+    @Before
+    public void setUp() throws Exception {
+        gci = new CountingInterceptor();
+        serve(gci);
+    }
+
+    private void serve(GarbageCollectorControlInterceptor interceptor) throws IOException {
+        if (server != null) {
+            tearDown();
+        }
+        streamReceived = new CountDownLatch(1);
+        ServerServiceDefinition service = ServerServiceDefinition.builder("gci.Test")
+                .addMethod(ECHO, ServerCalls.asyncUnaryCall((request, observer) -> {
+                    observer.onNext(request);
+                    observer.onCompleted();
+                }))
+                .addMethod(CONCAT, ServerCalls.asyncClientStreamingCall(observer -> new StreamObserver<String>() {
+                    StringBuilder sb = new StringBuilder();
+
+                    public void onNext(String value) {
+                        sb.append(value);
+                        streamReceived.countDown();
+                    }
+
+                    public void onError(Throwable t) {
+                    }
+
+                    public void onCompleted() {
+                        observer.onNext(sb.toString());
+                        observer.onCompleted();
+                    }
+                }))
+                .build();
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(ServerInterceptors.intercept(service, new GrpcGciInterceptor(interceptor)))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    @After
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void admittedCall() {
+        assertEquals("ok", ClientCalls.blockingUnaryCall(channel, ECHO, CallOptions.DEFAULT, "ok"));
+        assertEquals(1, gci.before.get());
+        assertEquals(1, gci.after.get());
+    }
+
+    @Test
+    public void shedCall() {
+        gci.shed = true;
+        try {
+            ClientCalls.blockingUnaryCall(channel, ECHO, CallOptions.DEFAULT, "ok");
+            fail("call should have been shed");
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+            assertEquals(Long.toString(CountingInterceptor.UNAVAILABILITY.toMillis()), e.getTrailers().get(GrpcGciInterceptor.RETRY_PUSHBACK_KEY));
+        }
+        assertEquals(1, gci.before.get());
+        assertEquals(1, gci.after.get());
+    }
+
+    @Test
+    public void streamInFlightUntilClosed() throws Exception {
+        RecordingObserver response = new RecordingObserver();
+        StreamObserver<String> requests = ClientCalls.asyncClientStreamingCall(
+                channel.newCall(CONCAT, CallOptions.DEFAULT), response);
+        requests.onNext("a");
+        requests.onNext("b");
+        assertTrue(streamReceived.await(5, TimeUnit.SECONDS));
+        assertEquals(1, gci.before.get());
+        assertEquals(0, gci.after.get());
+
+        requests.onCompleted();
+        assertTrue(response.done.await(5, TimeUnit.SECONDS));
+        assertEquals("ab", response.value);
+        assertEquals(1, gci.after.get());
+    }
+
+    @Test
+    public void cancelledStreamFinishes() throws Exception {
+        ClientCall<String, String> call = channel.newCall(CONCAT, CallOptions.DEFAULT);
+        StreamObserver<String> requests = ClientCalls.asyncClientStreamingCall(call, new RecordingObserver());
+        requests.onNext("a");
+        assertTrue(streamReceived.await(5, TimeUnit.SECONDS));
+        assertEquals(0, gci.after.get());
+
+        call.cancel("client gave up", null);
+        assertEquals(1, gci.after.get());
+    }
+
+    @Test
+    public void realInterceptorFinishesCompletedCalls() throws Exception {
+        GarbageCollectorControlInterceptor real = TestInterceptors.newInterceptor();
+        serve(real);
+
+        assertEquals("ok", ClientCalls.blockingUnaryCall(channel, ECHO, CallOptions.DEFAULT, "ok"));
+        assertEquals(0, TestInterceptors.inFlight(real));
+
+        RecordingObserver response = new RecordingObserver();
+        StreamObserver<String> requests = ClientCalls.asyncClientStreamingCall(
+                channel.newCall(CONCAT, CallOptions.DEFAULT), response);
+        requests.onNext("a");
+        assertTrue(streamReceived.await(5, TimeUnit.SECONDS));
+        assertEquals(1, TestInterceptors.inFlight(real));
+        requests.onCompleted();
+        assertTrue(response.done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, TestInterceptors.inFlight(real));
+    }
+
+    @Test
+    public void realInterceptorFinishesCancelledCalls() throws Exception {
+        GarbageCollectorControlInterceptor real = TestInterceptors.newInterceptor();
+        serve(real);
+
+        ClientCall<String, String> call = channel.newCall(CONCAT, CallOptions.DEFAULT);
+        StreamObserver<String> requests = ClientCalls.asyncClientStreamingCall(call, new RecordingObserver());
+        requests.onNext("a");
+        assertTrue(streamReceived.await(5, TimeUnit.SECONDS));
+        assertEquals(1, TestInterceptors.inFlight(real));
+
+        call.cancel("client gave up", null);
+        assertEquals(0, TestInterceptors.inFlight(real));
+    }
+
+    @Test
+    public void realInterceptorShedCallIsNotInFlight() throws Exception {
+        List<Runnable> collections = new ArrayList<>();
+        GarbageCollectorControlInterceptor real = TestInterceptors.newInterceptor(collections::add);
+        serve(real);
+        assertTrue(TestInterceptors.startCollection(real));
+
+        try {
+            ClientCalls.blockingUnaryCall(channel, ECHO, CallOptions.DEFAULT, "ok");
+            fail("call should have been shed");
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+            long pushback = Long.parseLong(e.getTrailers().get(GrpcGciInterceptor.RETRY_PUSHBACK_KEY));
+            assertTrue("pushback " + pushback, pushback >= 0 && pushback < 1000);
+        }
+        assertEquals(0, TestInterceptors.inFlight(real));
+
+        // Collection drains right away, nothing is left in flight.
+        collections.remove(0).run();
+        assertEquals("ok", ClientCalls.blockingUnaryCall(channel, ECHO, CallOptions.DEFAULT, "ok"));
+        assertEquals(0, TestInterceptors.inFlight(real));
+    }
+
+    static class RecordingObserver implements StreamObserver<String> {
+        CountDownLatch done = new CountDownLatch(1);
+        volatile String value;
+
+        public void onNext(String value) {
+            this.value = value;
+        }
+
+        public void onError(Throwable t) {
+            done.countDown();
+        }
+
+        public void onCompleted() {
+            done.countDown();
+        }
+    }
+}
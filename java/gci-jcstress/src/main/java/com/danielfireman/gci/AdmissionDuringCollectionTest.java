@@ -0,0 +1,42 @@
+package com.danielfireman.gci;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * A request racing with a collection decision is either admitted and counted in the epoch being
+ * drained, or shed and not counted at all.
+ *
+ * @author danielfireman
+ */
+@JCStressTest
+@Outcome(id = "1, 1, 1", expect = ACCEPTABLE, desc = "Admitted before the decision, the drain waits for it.")
+@Outcome(id = "0, 1, 0", expect = ACCEPTABLE, desc = "Shed after the decision, the drain does not wait for it.")
+@Outcome(expect = FORBIDDEN, desc = "In-flight count does not match the admission decision.")
+@State
+public class AdmissionDuringCollectionTest {
+    private final GarbageCollectorControlInterceptor gci = StressInterceptors.newInterceptor(task -> {
+    });
+
+    @Actor
+    public void request(III_Result r) {
+        r.r1 = gci.before().shouldShed ? 0 : 1;
+    }
+
+    @Actor
+    public void collection(III_Result r) {
+        r.r2 = gci.startCollection() ? 1 : 0;
+    }
+
+    @Arbiter
+    public void arbiter(III_Result r) {
+        r.r3 = (int) GarbageCollectorControlInterceptor.inFlight(gci.state.get());
+    }
+}
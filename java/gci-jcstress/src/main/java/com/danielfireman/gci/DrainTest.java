@@ -0,0 +1,43 @@
+package com.danielfireman.gci;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * Once every request racing with a collection decision has finished, nothing is left in flight
+ * and the interceptor is still draining.
+ *
+ * @author danielfireman
+ */
+@JCStressTest
+@Outcome(id = "0, 1", expect = ACCEPTABLE, desc = "Nothing in flight, draining.")
+@Outcome(expect = FORBIDDEN, desc = "In-flight count leaked or wrong phase.")
+@State
+public class DrainTest {
+    private final GarbageCollectorControlInterceptor gci = StressInterceptors.newInterceptor(task -> {
+    });
+
+    @Actor
+    public void request() {
+        gci.after(gci.before());
+    }
+
+    @Actor
+    public void collection() {
+        gci.startCollection();
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        long s = gci.state.get();
+        r.r1 = (int) GarbageCollectorControlInterceptor.inFlight(s);
+        r.r2 = GarbageCollectorControlInterceptor.phase(s);
+    }
+}
@@ -0,0 +1,44 @@
+package com.danielfireman.gci;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.JJ_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * Two racing {@code after()} calls for the same admitted request, as listener wrappers calling
+ * both onResponse and onFailure would do, account for it only once.
+ *
+ * @author danielfireman
+ */
+@JCStressTest
+@Outcome(id = "0, 0", expect = ACCEPTABLE, desc = "Accounted once, still admitting.")
+@Outcome(expect = FORBIDDEN, desc = "In-flight count underflowed into phase or epoch.")
+@State
+public class DuplicateAfterTest {
+    private final GarbageCollectorControlInterceptor gci = StressInterceptors.newInterceptor(task -> {
+    });
+    private final ShedResponse response = gci.before();
+
+    @Actor
+    public void onResponse() {
+        gci.after(response);
+    }
+
+    @Actor
+    public void onFailure() {
+        gci.after(response);
+    }
+
+    @Arbiter
+    public void arbiter(JJ_Result r) {
+        long s = gci.state.get();
+        r.r1 = GarbageCollectorControlInterceptor.inFlight(s);
+        r.r2 = GarbageCollectorControlInterceptor.phase(s);
+    }
+}
@@ -0,0 +1,43 @@
+package com.danielfireman.gci;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * A full collection cycle racing with a request ends admitting again, in the next epoch and with
+ * nothing in flight.
+ *
+ * @author danielfireman
+ */
+@JCStressTest
+@Outcome(id = "1, 0, 0", expect = ACCEPTABLE, desc = "Next epoch, admitting, nothing in flight.")
+@Outcome(expect = FORBIDDEN, desc = "Collection cycle left an inconsistent state.")
+@State
+public class EpochTest {
+    private final GarbageCollectorControlInterceptor gci = StressInterceptors.newInterceptor(Runnable::run);
+
+    @Actor
+    public void request() {
+        gci.after(gci.before());
+    }
+
+    @Actor
+    public void collection() {
+        gci.startCollection();
+    }
+
+    @Arbiter
+    public void arbiter(III_Result r) {
+        long s = gci.state.get();
+        r.r1 = (int) GarbageCollectorControlInterceptor.epoch(s);
+        r.r2 = GarbageCollectorControlInterceptor.phase(s);
+        r.r3 = (int) GarbageCollectorControlInterceptor.inFlight(s);
+    }
+}
@@ -0,0 +1,34 @@
+package com.danielfireman.gci;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * Only one of two concurrent collection decisions wins.
+ *
+ * @author danielfireman
+ */
+@JCStressTest
+@Outcome(id = {"1, 0", "0, 1"}, expect = ACCEPTABLE, desc = "Exactly one collection started.")
+@Outcome(expect = FORBIDDEN, desc = "Zero or two collections started.")
+@State
+public class SingleCollectionTest {
+    private final GarbageCollectorControlInterceptor gci = StressInterceptors.newInterceptor(task -> {
+    });
+
+    @Actor
+    public void first(II_Result r) {
+        r.r1 = gci.startCollection() ? 1 : 0;
+    }
+
+    @Actor
+    public void second(II_Result r) {
+        r.r2 = gci.startCollection() ? 1 : 0;
+    }
+}
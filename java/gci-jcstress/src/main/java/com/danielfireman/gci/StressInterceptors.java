@@ -0,0 +1,32 @@
+package com.danielfireman.gci;
+
+import java.time.Clock;
+import java.util.concurrent.Executor;
+
+/**
+ * Builds {@link GarbageCollectorControlInterceptor} instances for stress tests. The heap is
+ * always reported as almost empty, so collections only start when tests ask for them.
+ *
+ * @author danielfireman
+ */
+final class StressInterceptors {
+    private static final HeapMonitor EMPTY_HEAP = new HeapMonitor() {
+        @Override
+        Usage getUsage() {
+            return new Usage();
+        }
+    };
+
+    private StressInterceptors() {
+    }
+
+    static GarbageCollectorControlInterceptor newInterceptor(Executor executor) {
+        return new GarbageCollectorControlInterceptor(
+                EMPTY_HEAP,
+                () -> {
+                },
+                executor,
+                new UnavailabilityDuration(Clock.systemUTC()),
+                Clock.systemUTC());
+    }
+}
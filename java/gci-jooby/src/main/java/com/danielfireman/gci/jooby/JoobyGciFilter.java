@@ -1,6 +1,7 @@
 package com.danielfireman.gci.jooby;
 
 import com.danielfireman.gci.GarbageCollectorControlInterceptor;
+import com.danielfireman.gci.RetryAfter;
 import com.danielfireman.gci.ShedResponse;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -12,6 +13,9 @@ import org.jooby.Status;
 /**
  * Jooby filter that uses {@link GarbageCollectorControlInterceptor} to control garbage
  * collection and decide whether to shed requests.
+ * <p>
+ * Admitted requests are accounted as in flight until Jooby flags the response as complete, which
+ * also covers {@code Deferred} and other async routes finishing after {@code chain.next} returns.
  *
  * @author danielfireman
  * @see GarbageCollectorControlInterceptor
@@ -38,14 +42,15 @@ public class JoobyGciFilter implements Route.Filter {
     public void handle(Request request, Response response, Route.Chain chain) throws Throwable {
         ShedResponse shedResponse = gci.before();
         if (shedResponse.shouldShed) {
-            String duration = Double.toString(((double)shedResponse.unavailabilityDuration.toMillis())/1000d);
-            response.header("Retry-After", duration)
+            gci.after(shedResponse);
+            response.header("Retry-After", RetryAfter.headerValue(shedResponse.unavailabilityDuration))
                     .status(Status.SERVICE_UNAVAILABLE)
                     .length(0)
                     .end();
-        } else {
-            chain.next(request, response);
+            return;
         }
-        gci.after(shedResponse);
+        // Jooby calls complete handlers exactly once, after the response has been sent or the request failed.
+        response.complete((req, rsp, cause) -> gci.after(shedResponse));
+        chain.next(request, response);
     }
 }
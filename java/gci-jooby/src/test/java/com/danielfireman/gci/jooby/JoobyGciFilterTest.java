@@ -0,0 +1,200 @@
+package com.danielfireman.gci.jooby;
+
+import com.danielfireman.gci.CountingInterceptor;
+import com.danielfireman.gci.GarbageCollectorControlInterceptor;
+import com.danielfireman.gci.TestInterceptors;
+import org.jooby.Deferred;
+import org.jooby.Jooby;
+import org.jooby.test.JoobyRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.runners.model.Statement;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class JoobyGciFilterTest {
+
+    private static final CountingInterceptor gci = new CountingInterceptor();
+    private static final List<Runnable> collections = new CopyOnWriteArrayList<>();
+    private static final GarbageCollectorControlInterceptor real = TestInterceptors.newInterceptor(collections::add);
+    private static final int port = freePort();
+    // Counted down once the route has handed its Deferred over to Jooby.
+    private static volatile CountDownLatch deferred = new CountDownLatch(0);
+    private static volatile CountDownLatch resolve = new CountDownLatch(0);
+
+    /**
+     * Jooby 1.0.1 classes fail to link on Java 9+ (IncompatibleClassChangeError on org.jooby.Env),
+     * so the app is only created and these tests only run on Java 8.
+     */
+    @ClassRule
+    public static TestRule app = (base, description) -> new Statement() {
+        @Override
+        public void evaluate() throws Throwable {
+            assumeTrue("Jooby 1.0.1 requires Java 8", System.getProperty("java.specification.version").equals("1.8"));
+            new JoobyRule(new App()).apply(base, description).evaluate();
+        }
+    };
+
+    static class App extends Jooby {
+        {
+            port(port);
+            use("GET", "/counted/*", new JoobyGciFilter(gci));
+            use("GET", "/real/*", new JoobyGciFilter(real));
+            for (String prefix : new String[]{"/counted", "/real"}) {
+                get(prefix + "/deferred", req -> new Deferred(d -> {
+                    deferred.countDown();
+                    new Thread(() -> {
+                        try {
+                            resolve.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        d.resolve("done");
+                    }).start();
+                }));
+                get(prefix + "/boom", req -> {
+                    throw new IllegalStateException("boom");
+                });
+                get(prefix + "/ok", req -> "ok");
+            }
+        }
+    }
+
+    @Test
+    public void deferredRouteFinishesWhenResolved() throws Exception {
+        gci.reset();
+        holdDeferred();
+
+        CompletableFuture<Integer> status = CompletableFuture.supplyAsync(() -> get("/counted/deferred"));
+        assertTrue(deferred.await(5, TimeUnit.SECONDS));
+        // Route returned its Deferred, but it has not been resolved yet.
+        assertEquals(1, gci.before.get());
+        assertEquals(0, gci.after.get());
+
+        resolve.countDown();
+        assertEquals(200, (int) status.get(5, TimeUnit.SECONDS));
+        await("after() called", () -> gci.after.get() >= 1);
+        assertEquals(1, gci.after.get());
+    }
+
+    @Test
+    public void failingRouteFinishesOnce() throws Exception {
+        gci.reset();
+
+        assertEquals(500, get("/counted/boom"));
+        await("after() called", () -> gci.after.get() >= 1);
+        assertEquals(1, gci.before.get());
+        assertEquals(1, gci.after.get());
+    }
+
+    @Test
+    public void shedRequest() throws Exception {
+        gci.reset();
+        gci.shed = true;
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/counted/ok").openConnection();
+            assertEquals(503, conn.getResponseCode());
+            assertEquals("2", conn.getHeaderField("Retry-After"));
+            assertEquals(1, gci.after.get());
+        } finally {
+            gci.shed = false;
+        }
+    }
+
+    @Test
+    public void realInterceptorFinishesCompletedRequests() throws Exception {
+        assertEquals(200, get("/real/ok"));
+        await("nothing in flight", () -> TestInterceptors.inFlight(real) == 0);
+
+        assertEquals(500, get("/real/boom"));
+        await("nothing in flight", () -> TestInterceptors.inFlight(real) == 0);
+
+        holdDeferred();
+        CompletableFuture<Integer> status = CompletableFuture.supplyAsync(() -> get("/real/deferred"));
+        assertTrue(deferred.await(5, TimeUnit.SECONDS));
+        assertEquals(1, TestInterceptors.inFlight(real));
+        resolve.countDown();
+        assertEquals(200, (int) status.get(5, TimeUnit.SECONDS));
+        await("nothing in flight", () -> TestInterceptors.inFlight(real) == 0);
+    }
+
+    @Test
+    public void realInterceptorFinishesAbandonedRequests() throws Exception {
+        holdDeferred();
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/real/deferred").openConnection();
+        conn.setReadTimeout(200);
+        try {
+            conn.getResponseCode();
+            fail("deferred route should not have answered yet");
+        } catch (SocketTimeoutException e) {
+            // Client gave up.
+        } finally {
+            conn.disconnect();
+        }
+        assertTrue(deferred.await(5, TimeUnit.SECONDS));
+        assertEquals(1, TestInterceptors.inFlight(real));
+
+        resolve.countDown();
+        await("nothing in flight", () -> TestInterceptors.inFlight(real) == 0);
+    }
+
+    @Test
+    public void realInterceptorShedRequestIsNotInFlight() throws Exception {
+        assertTrue(TestInterceptors.startCollection(real));
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/real/ok").openConnection();
+            assertEquals(503, conn.getResponseCode());
+            assertEquals(0, TestInterceptors.inFlight(real));
+        } finally {
+            // Collection drains right away, nothing is left in flight.
+            collections.remove(0).run();
+        }
+        assertEquals(200, get("/real/ok"));
+    }
+
+    private static void holdDeferred() {
+        deferred = new CountDownLatch(1);
+        resolve = new CountDownLatch(1);
+    }
+
+    private static int get(String path) {
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+            return conn.getResponseCode();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void await(String message, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(message, condition.getAsBoolean());
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.danielfireman.gci.webflux;
+
+import com.danielfireman.gci.GarbageCollectorControlInterceptor;
+import com.danielfireman.gci.RetryAfter;
+import com.danielfireman.gci.ShedResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Spring WebFlux filter that uses {@link GarbageCollectorControlInterceptor} to control garbage
+ * collection and decide whether to shed requests.
+ * <p>
+ * Request accounting starts when the filter chain is subscribed to and finishes when the chain
+ * terminates, either by completion, error or cancellation. Shed requests are answered right away,
+ * without blocking the event loop.
+ *
+ * @author danielfireman
+ * @see GarbageCollectorControlInterceptor
+ */
+public class WebFluxGciFilter implements WebFilter {
+
+    private GarbageCollectorControlInterceptor gci;
+
+    public WebFluxGciFilter(GarbageCollectorControlInterceptor gci) {
+        System.out.println("Garbage Collector Control Interceptor activated.");
+        this.gci = gci;
+    }
+
+    /**
+     * Creates a new {@code WebFluxGciFilter} with default parameters
+     * @see com.danielfireman.gci.GarbageCollectorControlInterceptor#GarbageCollectorControlInterceptor()
+     */
+    public WebFluxGciFilter() {
+        this(new GarbageCollectorControlInterceptor());
+    }
+
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return Mono.defer(() -> {
+            ShedResponse shedResponse = gci.before();
+            if (shedResponse.shouldShed) {
+                gci.after(shedResponse);
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                HttpHeaders headers = response.getHeaders();
+                headers.set(HttpHeaders.RETRY_AFTER, RetryAfter.headerValue(shedResponse.unavailabilityDuration));
+                headers.setContentLength(0);
+                return response.setComplete();
+            }
+            return chain.filter(exchange).doFinally(signal -> gci.after(shedResponse));
+        });
+    }
+}
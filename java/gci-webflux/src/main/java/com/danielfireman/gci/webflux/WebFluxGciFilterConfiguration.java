@@ -0,0 +1,25 @@
+package com.danielfireman.gci.webflux;
+
+import com.danielfireman.gci.GarbageCollectorControlInterceptor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring {@link Configuration} to be exported by the WebFlux application that would
+ * like to use {@link WebFluxGciFilter}.
+ *
+ * @author danielfireman
+ * @see WebFluxGciFilter
+ */
+@Configuration
+public class WebFluxGciFilterConfiguration {
+    @Bean
+    public WebFluxGciFilter webFluxGciFilter(GarbageCollectorControlInterceptor gci) {
+        return new WebFluxGciFilter(gci);
+    }
+
+    @Bean
+    public GarbageCollectorControlInterceptor gciInterceptor() {
+        return new GarbageCollectorControlInterceptor();
+    }
+}
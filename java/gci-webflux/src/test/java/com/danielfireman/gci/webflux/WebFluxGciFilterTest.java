@@ -0,0 +1,150 @@
+package com.danielfireman.gci.webflux;
+
+import com.danielfireman.gci.CountingInterceptor;
+import com.danielfireman.gci.GarbageCollectorControlInterceptor;
+import com.danielfireman.gci.TestInterceptors;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+
+public class WebFluxGciFilterTest {
+
+    private CountingInterceptor gci;
+    private AtomicInteger handled;
+    private WebTestClient client;
+
+    @Before
+    public void setUp() {
+        gci = new CountingInterceptor();
+        handled = new AtomicInteger();
+        client = newClient(gci);
+    }
+
+    private WebTestClient newClient(GarbageCollectorControlInterceptor interceptor) {
+        return WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(GET("/"), request -> {
+                    handled.incrementAndGet();
+                    return ServerResponse.ok().bodyValue("ok");
+                }))
+                .webFilter(new WebFluxGciFilter(interceptor))
+                .build();
+    }
+
+    @Test
+    public void admittedRequest() {
+        client.get().uri("/").exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("ok");
+
+        assertEquals(1, gci.before.get());
+        assertEquals(1, gci.after.get());
+        assertEquals(1, handled.get());
+    }
+
+    @Test
+    public void shedRequest() {
+        gci.shed = true;
+
+        client.get().uri("/").exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals("Retry-After", "2")
+                .expectBody().isEmpty();
+
+        assertEquals(1, gci.before.get());
+        assertEquals(1, gci.after.get());
+        assertEquals(0, handled.get());
+    }
+
+    @Test
+    public void afterOnlyWhenChainCompletes() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+        WebFluxGciFilter filter = new WebFluxGciFilter(gci);
+
+        Mono<Void> filtered = filter.filter(exchange, e -> Mono.delay(Duration.ofMillis(50)).then());
+        assertEquals(0, gci.before.get());
+
+        filtered.block();
+        assertEquals(1, gci.before.get());
+        // doFinally runs after completion has reached block(), possibly on the timer thread.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (gci.after.get() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        assertEquals(1, gci.after.get());
+    }
+
+    @Test
+    public void afterOnCancel() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+        WebFluxGciFilter filter = new WebFluxGciFilter(gci);
+
+        Disposable subscription = filter.filter(exchange, e -> Mono.never()).subscribe();
+        assertEquals(1, gci.before.get());
+        assertEquals(0, gci.after.get());
+
+        subscription.dispose();
+        assertEquals(1, gci.after.get());
+    }
+
+    @Test
+    public void realInterceptorFinishesCompletedRequests() {
+        GarbageCollectorControlInterceptor real = TestInterceptors.newInterceptor();
+        newClient(real).get().uri("/").exchange()
+                .expectStatus().isOk();
+        assertEquals(0, TestInterceptors.inFlight(real));
+
+        // Chain errors finish the request as well.
+        WebFluxGciFilter filter = new WebFluxGciFilter(real);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+        filter.filter(exchange, e -> Mono.error(new IllegalStateException("boom"))).onErrorResume(t -> Mono.empty()).block();
+        assertEquals(0, TestInterceptors.inFlight(real));
+    }
+
+    @Test
+    public void realInterceptorFinishesCancelledRequests() {
+        GarbageCollectorControlInterceptor real = TestInterceptors.newInterceptor();
+        WebFluxGciFilter filter = new WebFluxGciFilter(real);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+
+        Disposable subscription = filter.filter(exchange, e -> Mono.never()).subscribe();
+        assertEquals(1, TestInterceptors.inFlight(real));
+
+        subscription.dispose();
+        assertEquals(0, TestInterceptors.inFlight(real));
+    }
+
+    @Test
+    public void realInterceptorShedRequestIsNotInFlight() {
+        List<Runnable> collections = new ArrayList<>();
+        GarbageCollectorControlInterceptor real = TestInterceptors.newInterceptor(collections::add);
+        WebTestClient realClient = newClient(real);
+        assertTrue(TestInterceptors.startCollection(real));
+
+        realClient.get().uri("/").exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().exists("Retry-After");
+        assertEquals(0, TestInterceptors.inFlight(real));
+        assertEquals(0, handled.get());
+
+        // Collection drains right away, nothing is left in flight.
+        collections.remove(0).run();
+        realClient.get().uri("/").exchange()
+                .expectStatus().isOk();
+        assertEquals(0, TestInterceptors.inFlight(real));
+    }
+}
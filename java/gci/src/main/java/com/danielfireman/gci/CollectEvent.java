@@ -0,0 +1,20 @@
+package com.danielfireman.gci;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event spanning a garbage collection triggered by {@link GarbageCollectorControlInterceptor}.
+ *
+ * @author danielfireman
+ */
+@Name("com.danielfireman.gci.Collect")
+@Label("GCI Collect")
+@Category("GCI")
+@Description("Garbage collection triggered by the Garbage Collector Control Interceptor")
+@StackTrace(false)
+class CollectEvent extends jdk.jfr.Event {
+}
@@ -0,0 +1,24 @@
+package com.danielfireman.gci;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event spanning the wait for in-flight requests to finish before a collection.
+ * The event duration is the time spent waiting.
+ *
+ * @author danielfireman
+ */
+@Name("com.danielfireman.gci.Drain")
+@Label("GCI Drain")
+@Category("GCI")
+@Description("Wait for in-flight requests to finish before triggering garbage collection")
+@StackTrace(false)
+class DrainEvent extends jdk.jfr.Event {
+    @Label("In-flight Requests")
+    @Description("Number of requests in flight when the drain started")
+    long inFlight;
+}
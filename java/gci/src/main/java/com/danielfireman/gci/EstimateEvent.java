@@ -0,0 +1,38 @@
+package com.danielfireman.gci;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event emitted by {@link UnavailabilityDuration} at the end of every unavailability
+ * period, comparing what was predicted with what actually happened.
+ *
+ * @author danielfireman
+ */
+@Name("com.danielfireman.gci.Estimate")
+@Label("GCI Estimate")
+@Category("GCI")
+@Description("Unavailability estimate versus the actual values")
+@StackTrace(false)
+class EstimateEvent extends jdk.jfr.Event {
+    @Label("Predicted Unavailability")
+    @Timespan(Timespan.MILLISECONDS)
+    long predictedUnavailability;
+
+    @Label("Actual Unavailability")
+    @Timespan(Timespan.MILLISECONDS)
+    long actualUnavailability;
+
+    @Label("Predicted Request Duration")
+    @Timespan(Timespan.MILLISECONDS)
+    long predictedRequestDuration;
+
+    @Label("Actual Request Duration")
+    @Description("Mean plus three standard deviations of the request durations since the last unavailability period")
+    @Timespan(Timespan.MILLISECONDS)
+    long actualRequestDuration;
+}
@@ -4,40 +4,82 @@ import java.time.Clock;
 import java.time.Duration;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 /**
  * Garbage Collector Control Interceptor (GCI).
  * This class is thread-safe. It is meant to be used as singleton in highly
  * concurrent environment.
+ * <p>
+ * Admission is controlled by a single packed state word holding an epoch, a phase and the number of
+ * requests admitted in the current epoch which have not finished yet:
+ * <pre>
+ *   | epoch (30 bits) | phase (2 bits) | in-flight (32 bits) |
+ * </pre>
+ * Requests are only admitted in the {@code ADMITTING} phase. Once a collection is decided the phase moves
+ * to {@code DRAINING}, so the drain only waits for requests admitted before that decision. When the in-flight
+ * count reaches zero the phase moves to {@code COLLECTING} and, after the collection, back to {@code ADMITTING}
+ * in a new epoch. Every transition is a single atomic add, except for deciding a collection, which uses a
+ * compare-and-set loop so only one caller moves the phase out of {@code ADMITTING}.
+ * <p>
+ * Right after a collection admission goes through a slow-start period, during which the number of
+ * in-flight requests is limited. The limit starts at a fraction of the peak concurrency seen since the
+ * previous collection and ramps linearly up to that peak. Together with jittered Retry-After values, this keeps shed clients from
+ * coming back all at once and driving the heap straight back to the threshold.
  *
  * @author danielfireman
  */
 public class GarbageCollectorControlInterceptor {
     private static final float SHEDDING_THRESHOLD = System.getenv("GCI_SHEDDING_THRESHOLD") == null ? 0.9f : Float.parseFloat(System.getenv("GCI_SHEDDING_THRESHOLD"));
     private static final Duration WAIT_FOR_TRAILERS_SLEEP_MILLIS = Duration.ofMillis(10);
+    private static final long SLOW_START_MILLIS = System.getenv("GCI_SLOW_START_MILLIS") == null ? 1000L : Long.parseLong(System.getenv("GCI_SLOW_START_MILLIS"));
+    private static final long SLOW_START_NANOS = TimeUnit.MILLISECONDS.toNanos(SLOW_START_MILLIS);
+    private static final float SLOW_START_FLOOR = System.getenv("GCI_SLOW_START_FLOOR") == null ? 0.25f : Float.parseFloat(System.getenv("GCI_SLOW_START_FLOOR"));
+    private static final float RETRY_JITTER = System.getenv("GCI_RETRY_JITTER") == null ? 0.5f : Float.parseFloat(System.getenv("GCI_RETRY_JITTER"));
+    // Retry-After has a resolution of seconds, smaller jitter would be rounded away. GCI_RETRY_JITTER <= 0 disables it.
+    private static final long MIN_RETRY_JITTER_MILLIS = 1000L;
+
+    // State word layout. Package private to make testing easier.
+    static final int ADMITTING = 0;
+    static final int DRAINING = 1;
+    static final int COLLECTING = 2;
+    private static final int PHASE_SHIFT = 32;
+    private static final int EPOCH_SHIFT = 34;
+    private static final long IN_FLIGHT_MASK = (1L << PHASE_SHIFT) - 1;
+    private static final long PHASE_MASK = 3L;
+    private static final long ONE_PHASE = 1L << PHASE_SHIFT;
+    private static final long ONE_EPOCH = 1L << EPOCH_SHIFT;
+    private static final AtomicLongFieldUpdater<GarbageCollectorControlInterceptor> SLOW_START_EPOCH =
+            AtomicLongFieldUpdater.newUpdater(GarbageCollectorControlInterceptor.class, "slowStartEpoch");
+
     private final Clock clock;
-    AtomicBoolean doingGC = new AtomicBoolean(false);  // Package private to make testing easier.
-    private AtomicLong incoming = new AtomicLong();
-    private AtomicLong finished = new AtomicLong();
-    private HeapMonitor monitor;
+    final AtomicLong state = new AtomicLong();  // Package private to make testing easier.
+    final LongAdder arrivals = new LongAdder();  // Package private, watched by IdleCollectionScheduler.
+    HeapMonitor monitor;  // Package private, shared with IdleCollectionScheduler.
     private GarbageCollector collector;
     private Executor executor;
     private UnavailabilityDuration unavailabilityDuration;
-    private int sampleCount = 0;
-    private long lastFinished = 0;
-    private AtomicInteger sampleRate = new AtomicInteger(DEFAULT_SAMPLE_RATE);
-    private int[] pastSampleRates = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
-    // Default sample rate should be fairly small, so big requests get checked up quickly.
-    private static final int DEFAULT_SAMPLE_RATE = 10;
-    // Max sample rate can not be very big because of peaks.
-    // The algorithm is fairly conservative, but we never know.
-    private static final int MAX_SAMPLE_RATE = 30;
+    LongSupplier nanoTime = System::nanoTime;  // Package private to make testing easier.
+    // Peak number of requests in flight since the last collection. Racy updates are fine, it is a hint.
+    private volatile long peakInFlight = 0;
+    // Epoch going through slow start, -1 if none. Written after the target and deadline, so reading it first
+    // makes them visible. Epochs never repeat in practice, so clearing it with a CAS can not lose a newer period.
+    private volatile long slowStartEpoch = -1;
+    private volatile long slowStartTarget;
+    private volatile long slowStartUntilNanos;
+
+    // Sample rate should be fairly small, so big requests get checked up quickly.
+    private static final int SAMPLE_RATE = 10;
 
     static {
         System.out.format("GCI_SHEDDING_THRESHOLD: %f\n", SHEDDING_THRESHOLD);
+        System.out.format("GCI_SLOW_START_MILLIS: %d GCI_SLOW_START_FLOOR: %f GCI_RETRY_JITTER: %f (at least %dms, <= 0 disables)\n",
+                SLOW_START_MILLIS, SLOW_START_FLOOR, RETRY_JITTER, MIN_RETRY_JITTER_MILLIS);
     }
 
     /**
@@ -79,63 +121,177 @@ public class GarbageCollectorControlInterceptor {
                 Clock.systemUTC());
     }
 
-    private ShedResponse shedRequest(Duration unavailabilityDuration) {
+    static long inFlight(long state) {
+        return state & IN_FLIGHT_MASK;
+    }
+
+    static int phase(long state) {
+        return (int) ((state >>> PHASE_SHIFT) & PHASE_MASK);
+    }
+
+    static long epoch(long state) {
+        return state >>> EPOCH_SHIFT;
+    }
+
+    /**
+     * @return whether a collection is in progress, either draining in-flight requests or collecting.
+     */
+    boolean doingGC() {
+        return phase(state.get()) != ADMITTING;
+    }
+
+    private ShedResponse shedRequest() {
+        // The queue term has always been zero here: the queue size used to be finished - incoming, never positive.
+        return shedRequest(unavailabilityDuration.estimate(0));
+    }
+
+    private ShedResponse shedRequest(Duration estimate) {
+        return shedRequest(estimate, RETRY_JITTER);
+    }
+
+    /**
+     * Sheds a request, spreading its retry over {@code [estimate, estimate + jitter)} so clients shed during
+     * the same unavailability period do not retry all at once. Package private to make testing easier.
+     *
+     * @param retryJitter jitter as a fraction of the estimate, at least one second. Zero or less disables it.
+     */
+    ShedResponse shedRequest(Duration estimate, float retryJitter) {
+        long retryMillis = estimate.toMillis();
+        if (retryJitter > 0) {
+            long jitterMillis = Math.max((long) (retryMillis * retryJitter), MIN_RETRY_JITTER_MILLIS);
+            retryMillis += ThreadLocalRandom.current().nextLong(jitterMillis);
+        }
+        Duration unavailabilityDuration = Duration.ofMillis(retryMillis);
+        ShedEvent event = new ShedEvent();
+        if (event.isEnabled()) {
+            event.unavailabilityDuration = unavailabilityDuration.toMillis();
+            event.commit();
+        }
         return new ShedResponse(true, unavailabilityDuration, clock.millis());
     }
 
     public ShedResponse before() {
-        incoming.incrementAndGet();
-        if (doingGC.get()) {
-            return shedRequest(unavailabilityDuration.estimate(finished.get() - incoming.get()));
+        arrivals.increment();
+        long s = state.get();
+        if (phase(s) != ADMITTING) {
+            return shedRequest();
         }
-        if (incoming.get() % sampleRate.get() == 0) {
+        if (slowStartEpoch == epoch(s)) {
+            long remainingNanos = slowStartUntilNanos - nanoTime.getAsLong();
+            if (remainingNanos <= 0) {
+                SLOW_START_EPOCH.compareAndSet(this, epoch(s), -1);
+            } else if (inFlight(s) >= slowStartLimit(slowStartTarget, remainingNanos)) {
+                return shedRequest(Duration.ofNanos(remainingNanos));
+            }
+        }
+        if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0) {
             HeapMonitor.Usage usage = monitor.getUsage();
-            if (usage.tenured > SHEDDING_THRESHOLD || usage.young > SHEDDING_THRESHOLD) {
-		// Note: Please, be kind and keep the following synchronized block small.
-                synchronized (this) {
-                    if (doingGC.get()) {
-                        return shedRequest(unavailabilityDuration.estimate(finished.get() - incoming.get()));
-                    }
-                    doingGC.set(true);
-                    lastFinished = (int)finished.get();
-                }
-                executor.execute(() -> {
-		    // Being conservative here. Picking up the minimum value among last sample rates.
-                    if (sampleCount > 0) {
-			    int lastWindow = (int)(finished.get() - lastFinished);
-			    pastSampleRates[sampleCount % pastSampleRates.length] = lastWindow;
-			    long min = pastSampleRates[0];
-			    for (int i = 1; i < pastSampleRates.length; i++) {
-				if (pastSampleRates[i] < min) min = pastSampleRates[i];
-			    }
-		    	    sampleCount++;
-			    sampleRate.set((int)Math.min(min, MAX_SAMPLE_RATE));  
-		    }
-
-                    // Loop waiting for the queue to get empty.
-                    while (finished.get() < incoming.get()) {
-                        try {
-                            Thread.sleep(WAIT_FOR_TRAILERS_SLEEP_MILLIS.toMillis());
-                        } catch (InterruptedException ie) {
-                            throw new RuntimeException(ie);
-                        }
-                    }
-                    // Finally, collect the garbage.
-                    unavailabilityDuration.begin();
-                    collector.collect();
-                    unavailabilityDuration.end();
-                    doingGC.set(false);
-                });
-                return shedRequest(unavailabilityDuration.estimate(finished.get() - incoming.get()));
+            boolean aboveThreshold = usage.tenured > SHEDDING_THRESHOLD || usage.young > SHEDDING_THRESHOLD;
+            HeapCheckEvent heapCheck = new HeapCheckEvent();
+            if (heapCheck.isEnabled()) {
+                heapCheck.young = usage.young;
+                heapCheck.tenured = usage.tenured;
+                heapCheck.sampleRate = SAMPLE_RATE;
+                heapCheck.aboveThreshold = aboveThreshold;
+                heapCheck.commit();
+            }
+            if (aboveThreshold) {
+                startCollection();
+                return shedRequest();
             }
         }
+        s = state.getAndIncrement();
+        if (phase(s) != ADMITTING) {
+            // A collection has been decided in between. This request does not belong to the epoch being drained.
+            state.getAndDecrement();
+            return shedRequest();
+        }
+        long admitted = inFlight(s) + 1;
+        if (admitted > peakInFlight) {
+            peakInFlight = admitted;
+        }
         return new ShedResponse(false, null, clock.millis());
     }
 
+    /**
+     * @param target         peak concurrency the ramp ends at.
+     * @param remainingNanos time left in the slow-start period.
+     * @return maximum number of requests in flight at this point of the slow-start period.
+     */
+    static long slowStartLimit(long target, long remainingNanos) {
+        long elapsed = Math.max(0, Math.min(SLOW_START_NANOS, SLOW_START_NANOS - remainingNanos));
+        double fraction = SLOW_START_FLOOR + (1 - SLOW_START_FLOOR) * ((double) elapsed / SLOW_START_NANOS);
+        return Math.max(1, (long) (target * fraction));
+    }
+
+    /**
+     * Starts a garbage collection on the executor, unless there is one already in progress.
+     * The collection waits for all requests admitted before this call to finish before being triggered.
+     *
+     * @return whether a new collection has been started.
+     */
+    boolean startCollection() {
+        long s;
+        do {
+            s = state.get();
+            if (phase(s) != ADMITTING) {
+                return false;
+            }
+        } while (!state.compareAndSet(s, s + ONE_PHASE));
+        executor.execute(this::collect);
+        return true;
+    }
+
+    private void collect() {
+        // Loop waiting for requests admitted in this epoch to finish.
+        DrainEvent drain = new DrainEvent();
+        if (drain.isEnabled()) {
+            drain.begin();
+            drain.inFlight = inFlight(state.get());
+        }
+        while (inFlight(state.get()) > 0) {
+            try {
+                Thread.sleep(WAIT_FOR_TRAILERS_SLEEP_MILLIS.toMillis());
+            } catch (InterruptedException ie) {
+                throw new RuntimeException(ie);
+            }
+        }
+        drain.commit();
+        state.getAndAdd(ONE_PHASE);  // DRAINING -> COLLECTING
+
+        // Finally, collect the garbage.
+        CollectEvent collect = new CollectEvent();
+        collect.begin();
+        unavailabilityDuration.begin();
+        try {
+            collector.collect();
+        } finally {
+            unavailabilityDuration.end();
+            collect.commit();
+            long target = peakInFlight;
+            peakInFlight = 0;
+            if (SLOW_START_NANOS > 0 && target > 0) {
+                slowStartTarget = target;
+                // Monotonic time, so wall-clock steps can not stretch the slow-start period.
+                slowStartUntilNanos = nanoTime.getAsLong() + SLOW_START_NANOS;
+                slowStartEpoch = epoch(state.get() + ONE_EPOCH);
+            }
+            state.getAndAdd(ONE_EPOCH - COLLECTING * ONE_PHASE);  // COLLECTING -> ADMITTING, next epoch.
+        }
+    }
+
+    /**
+     * Flags that the request has finished. Calling it more than once for the same response is harmless.
+     *
+     * @param response response returned by {@link #before()} for this request.
+     */
     public void after(ShedResponse response) {
-        finished.incrementAndGet();
-        if (!response.shouldShed) {
-            unavailabilityDuration.requestFinished(clock.millis()-response.startTimeMillis);
+        if (!response.shouldShed && response.markFinished()) {
+            if (inFlight(state.getAndDecrement()) == 0) {
+                // Response did not come from before(). Undo the borrow before it corrupts phase and epoch.
+                state.getAndIncrement();
+            }
+            unavailabilityDuration.requestFinished(clock.millis() - response.startTimeMillis);
         }
     }
 }
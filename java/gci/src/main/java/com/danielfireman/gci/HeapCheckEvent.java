@@ -0,0 +1,35 @@
+package com.danielfireman.gci;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted every time {@link GarbageCollectorControlInterceptor} samples heap usage.
+ *
+ * @author danielfireman
+ */
+@Name("com.danielfireman.gci.HeapCheck")
+@Label("GCI Heap Check")
+@Category("GCI")
+@Description("Heap usage sampled by the Garbage Collector Control Interceptor")
+@StackTrace(false)
+class HeapCheckEvent extends jdk.jfr.Event {
+    @Label("Young Usage")
+    @Percentage
+    double young;
+
+    @Label("Tenured Usage")
+    @Percentage
+    double tenured;
+
+    @Label("Sample Rate")
+    @Description("Number of requests between two heap checks")
+    int sampleRate;
+
+    @Label("Above Threshold")
+    boolean aboveThreshold;
+}
@@ -0,0 +1,172 @@
+package com.danielfireman.gci;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proactively triggers garbage collection when traffic dips, so collections tend to happen in
+ * quiet periods instead of in the middle of traffic peaks.
+ * <p>
+ * Every period the scheduler compares the number of requests that arrived at the
+ * {@link GarbageCollectorControlInterceptor} with a moving average of past periods. If the arrival
+ * rate has dropped, the heap usage is moderately high and the tenured pool has grown since the last
+ * collection, a drained collection is started on the executor already used by the interceptor. The young
+ * pool refills between collections anyway, so its growth alone is not a reason to collect.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author danielfireman
+ */
+public class IdleCollectionScheduler {
+    private static final float IDLE_THRESHOLD = System.getenv("GCI_IDLE_THRESHOLD") == null ? 0.6f : Float.parseFloat(System.getenv("GCI_IDLE_THRESHOLD"));
+    private static final float IDLE_RATE_RATIO = System.getenv("GCI_IDLE_RATE_RATIO") == null ? 0.5f : Float.parseFloat(System.getenv("GCI_IDLE_RATE_RATIO"));
+    private static final Duration DEFAULT_PERIOD = Duration.ofMillis(100);
+    // Weight of the last period in the arrival rate moving average.
+    private static final double RATE_SMOOTHING = 0.2;
+    // Tenured usage must have grown at least this much since the last collection. Avoids collecting
+    // over and over when the live set alone is above the idle threshold.
+    private static final double MIN_GROWTH = 0.1;
+
+    private final GarbageCollectorControlInterceptor gci;
+    final ScheduledExecutorService scheduler;  // Package private to make testing easier.
+    // Whether the scheduler has been created by this instance, and so has to be shut down by it.
+    private final boolean ownsScheduler;
+    private final Duration period;
+    private final double idleThreshold;
+    private final double idleRateRatio;
+    private ScheduledFuture<?> task;
+
+    // Only accessed by the scheduler thread.
+    private long lastIncoming = -1;
+    private double averageArrivals = -1;
+    private double tenuredAfterCollection = 0;
+    private long lastEpoch = 0;
+
+    static {
+        System.out.format("GCI_IDLE_THRESHOLD: %f GCI_IDLE_RATE_RATIO: %f\n", IDLE_THRESHOLD, IDLE_RATE_RATIO);
+    }
+
+    /**
+     * Creates a new instance of {@code IdleCollectionScheduler}
+     *
+     * @param gci           interceptor whose traffic is watched and whose executor runs the collections.
+     * @param scheduler     thread pool used to periodically check traffic and heap usage. It is owned by the
+     *                      caller, {@link #stop()} does not shut it down.
+     * @param period        interval between two checks.
+     * @param idleThreshold minimum heap usage (young or tenured) to trigger a collection in a quiet period.
+     * @param idleRateRatio the arrival rate of the last period must be at most this fraction of the
+     *                      average arrival rate to be considered a quiet period.
+     */
+    public IdleCollectionScheduler(
+            GarbageCollectorControlInterceptor gci,
+            ScheduledExecutorService scheduler,
+            Duration period,
+            double idleThreshold,
+            double idleRateRatio) {
+        this(gci, scheduler, false, period, idleThreshold, idleRateRatio);
+    }
+
+    private IdleCollectionScheduler(
+            GarbageCollectorControlInterceptor gci,
+            ScheduledExecutorService scheduler,
+            boolean ownsScheduler,
+            Duration period,
+            double idleThreshold,
+            double idleRateRatio) {
+        this.gci = gci;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.period = period;
+        this.idleThreshold = idleThreshold;
+        this.idleRateRatio = idleRateRatio;
+    }
+
+    /**
+     * Creates a new instance of {@code IdleCollectionScheduler} using defaults. Thresholds can be
+     * set through the GCI_IDLE_THRESHOLD and GCI_IDLE_RATE_RATIO environment variables. Checks run on a
+     * scheduler thread owned by this instance, which is shut down by {@link #stop()}.
+     *
+     * @param gci interceptor whose traffic is watched and whose executor runs the collections.
+     */
+    public IdleCollectionScheduler(GarbageCollectorControlInterceptor gci) {
+        this(gci,
+                Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "gci-idle-collection-scheduler");
+                    t.setDaemon(true);
+                    return t;
+                }),
+                true,
+                DEFAULT_PERIOD,
+                IDLE_THRESHOLD,
+                IDLE_RATE_RATIO);
+    }
+
+    /**
+     * Starts watching traffic and heap usage.
+     */
+    public synchronized void start() {
+        if (task == null) {
+            task = scheduler.scheduleAtFixedRate(this::check, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops watching traffic and heap usage. Collections already started are not affected. If the
+     * scheduler has been created by this instance it is shut down, so it can not be started again.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Checks the last period and starts a collection if it has been a quiet one.
+     *
+     * @return whether a collection has been started.
+     */
+    boolean check() {
+        long incoming = gci.arrivals.sum();
+        if (lastIncoming < 0) {
+            lastIncoming = incoming;
+            return false;
+        }
+        long arrivals = incoming - lastIncoming;
+        lastIncoming = incoming;
+        if (averageArrivals < 0) {
+            averageArrivals = arrivals;
+            return false;
+        }
+        // No traffic at all is not a dip.
+        boolean quiet = averageArrivals >= 1 && arrivals <= idleRateRatio * averageArrivals;
+        averageArrivals = RATE_SMOOTHING * arrivals + (1 - RATE_SMOOTHING) * averageArrivals;
+
+        long state = gci.state.get();
+        if (GarbageCollectorControlInterceptor.phase(state) != GarbageCollectorControlInterceptor.ADMITTING) {
+            return false;
+        }
+        // Every finished collection moves to a new epoch, including short ones started by requests.
+        // Tenured has not grown yet right after one, so there is nothing else to check.
+        long epoch = GarbageCollectorControlInterceptor.epoch(state);
+        if (epoch != lastEpoch) {
+            tenuredAfterCollection = gci.monitor.getUsage().tenured;
+            lastEpoch = epoch;
+            return false;
+        }
+        // Reading the memory pools is not free, skip it while traffic is steady.
+        if (!quiet) {
+            return false;
+        }
+        HeapMonitor.Usage usage = gci.monitor.getUsage();
+        boolean high = Math.max(usage.young, usage.tenured) >= idleThreshold;
+        boolean tenuredGrew = usage.tenured - tenuredAfterCollection >= MIN_GROWTH;
+        return high && tenuredGrew && gci.startCollection();
+    }
+}
@@ -0,0 +1,35 @@
+package com.danielfireman.gci;
+
+import java.time.Duration;
+
+/**
+ * Formats unavailability durations as Retry-After header values, as per
+ * <a href="https://tools.ietf.org/html/rfc7231#section-7.1.3">RFC 7231</a>.
+ * Values are pre-built, so shedding a request does not allocate a new string.
+ *
+ * @author danielfireman
+ */
+public final class RetryAfter {
+    // Unavailability estimates rarely get past a couple of seconds. Anything bigger is capped.
+    private static final int MAX_SECONDS = 120;
+    private static final String[] VALUES = new String[MAX_SECONDS + 1];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = Integer.toString(i);
+        }
+    }
+
+    private RetryAfter() {
+    }
+
+    /**
+     * @param unavailabilityDuration estimated duration of server unavailability.
+     * @return number of seconds (rounded up) the client should wait before retrying.
+     */
+    public static String headerValue(Duration unavailabilityDuration) {
+        long millis = unavailabilityDuration == null ? 0 : unavailabilityDuration.toMillis();
+        long seconds = millis <= 0 ? 0 : (millis + 999) / 1000;
+        return VALUES[(int) Math.min(seconds, MAX_SECONDS)];
+    }
+}
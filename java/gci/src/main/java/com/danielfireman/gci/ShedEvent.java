@@ -0,0 +1,24 @@
+package com.danielfireman.gci;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event emitted when {@link GarbageCollectorControlInterceptor} decides to shed a request.
+ *
+ * @author danielfireman
+ */
+@Name("com.danielfireman.gci.Shed")
+@Label("GCI Shed")
+@Category("GCI")
+@Description("Request shed by the Garbage Collector Control Interceptor")
+@StackTrace(false)
+class ShedEvent extends jdk.jfr.Event {
+    @Label("Unavailability Estimate")
+    @Timespan(Timespan.MILLISECONDS)
+    long unavailabilityDuration;
+}
@@ -1,12 +1,16 @@
 package com.danielfireman.gci;
 
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Holds the response of processing a single request from {@code GarbageCollectorControlInterceptor}.
  * @author danielfireman
  */
 public class ShedResponse {
+    private static final AtomicIntegerFieldUpdater<ShedResponse> FINISHED =
+            AtomicIntegerFieldUpdater.newUpdater(ShedResponse.class, "finished");
+
     /**
      * The estimated duration of server unavailability due to GC activity.
      * This is used to the Retry-After response header, as per
@@ -24,9 +28,19 @@ public class ShedResponse {
      */
     public long startTimeMillis;
 
+    // Set once the request has been accounted as finished. Integer because of the field updater.
+    private volatile int finished;
+
     public ShedResponse(boolean shouldShed, Duration unavailabilityDuration, long startTimeMillis) {
         this.unavailabilityDuration = unavailabilityDuration;
         this.shouldShed = shouldShed;
         this.startTimeMillis = startTimeMillis;
     }
+
+    /**
+     * @return true only for the first call, so a request is never accounted as finished twice.
+     */
+    boolean markFinished() {
+        return FINISHED.compareAndSet(this, 0, 1);
+    }
 }
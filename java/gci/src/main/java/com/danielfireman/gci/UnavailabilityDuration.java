@@ -66,6 +66,12 @@ public class UnavailabilityDuration {
      */
     synchronized void end() {
         long durationMillis = clock.millis() - gcStartTime;
+        EstimateEvent event = new EstimateEvent();
+        if (event.isEnabled()) {
+            event.predictedUnavailability = gcEstimation;
+            event.actualUnavailability = durationMillis;
+            event.predictedRequestDuration = requestDurationEstimation;
+        }
         past[gcCount] = durationMillis;
         long max = past[0];
         for (int i = 1; i < past.length; i++) if (past[i] > max) max = past[i];
@@ -76,6 +82,10 @@ public class UnavailabilityDuration {
         long mean = (requestCount > 0) ? (long) requestDurationNewMean : 0L;
         long stdDev = (long) Math.sqrt((requestCount > 1) ? requestDurationNewVar / (double) (requestCount - 1) : 0.0);
         pastRequestDurations[gcCount] = mean + 3 * stdDev;
+        if (event.isEnabled()) {
+            event.actualRequestDuration = pastRequestDurations[gcCount];
+            event.commit();
+        }
 
         max = pastRequestDurations[0];
         for (int i = 1; i < pastRequestDurations.length; i++)
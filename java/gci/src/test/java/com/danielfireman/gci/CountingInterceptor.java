@@ -0,0 +1,41 @@
+package com.danielfireman.gci;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link GarbageCollectorControlInterceptor} stub for tests of the framework adapters. It only counts
+ * calls and sheds whenever tests say so, with a fixed unavailability estimate.
+ *
+ * @author danielfireman
+ */
+public class CountingInterceptor extends GarbageCollectorControlInterceptor {
+    public static final Duration UNAVAILABILITY = Duration.ofMillis(1500);
+
+    public volatile boolean shed;
+    public final AtomicInteger before = new AtomicInteger();
+    public final AtomicInteger after = new AtomicInteger();
+
+    public CountingInterceptor() {
+        super(new FakeHeapMonitor(), () -> {
+        }, Runnable::run, new UnavailabilityDuration(Clock.systemUTC()), Clock.systemUTC());
+    }
+
+    public void reset() {
+        shed = false;
+        before.set(0);
+        after.set(0);
+    }
+
+    @Override
+    public ShedResponse before() {
+        before.incrementAndGet();
+        return new ShedResponse(shed, shed ? UNAVAILABILITY : null, System.currentTimeMillis());
+    }
+
+    @Override
+    public void after(ShedResponse response) {
+        after.incrementAndGet();
+    }
+}
@@ -0,0 +1,19 @@
+package com.danielfireman.gci;
+
+/**
+ * {@link HeapMonitor} reporting whatever usage tests set.
+ */
+class FakeHeapMonitor extends HeapMonitor {
+    volatile double young;
+    volatile double tenured;
+    volatile int reads;
+
+    @Override
+    Usage getUsage() {
+        reads++;
+        Usage usage = new Usage();
+        usage.young = young;
+        usage.tenured = tenured;
+        return usage;
+    }
+}
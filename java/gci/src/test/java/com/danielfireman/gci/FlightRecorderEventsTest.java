@@ -0,0 +1,158 @@
+package com.danielfireman.gci;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderEventsTest {
+    private static final String[] EVENTS = {
+            "com.danielfireman.gci.HeapCheck",
+            "com.danielfireman.gci.Shed",
+            "com.danielfireman.gci.Drain",
+            "com.danielfireman.gci.Collect",
+            "com.danielfireman.gci.Estimate",
+    };
+
+    private FakeHeapMonitor monitor;
+    private GarbageCollectorControlInterceptorTest.MutableClock clock;
+    private GarbageCollectorControlInterceptor gci;
+    private Recording recording;
+    private Path dump;
+
+    @Before
+    public void setUp() throws IOException {
+        monitor = new FakeHeapMonitor();
+        clock = new GarbageCollectorControlInterceptorTest.MutableClock();
+        UnavailabilityDuration unavailability = new UnavailabilityDuration(clock);
+        // Past unavailability period, so the estimate has something to predict from.
+        unavailability.begin();
+        clock.millis += 4000;
+        unavailability.end();
+        gci = new GarbageCollectorControlInterceptor(
+                monitor,
+                () -> {
+                    clock.millis += 50;
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                },
+                Runnable::run,
+                unavailability,
+                clock);
+        recording = new Recording();
+        dump = Files.createTempFile("gci", ".jfr");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        recording.close();
+        Files.deleteIfExists(dump);
+    }
+
+    @Test
+    public void eventsEmittedWhenEnabled() throws Exception {
+        for (String event : EVENTS) {
+            recording.enable(event);
+        }
+        recording.start();
+        List<ShedResponse> admitted = new ArrayList<>();
+        ShedResponse shed = shedThroughCollection(admitted);
+        recording.stop();
+        recording.dump(dump);
+        List<RecordedEvent> events = gciEvents();
+
+        List<RecordedEvent> heapChecks = ofType(events, "HeapCheck");
+        assertFalse(heapChecks.isEmpty());
+        RecordedEvent trigger = heapChecks.get(heapChecks.size() - 1);
+        assertTrue(trigger.getBoolean("aboveThreshold"));
+        assertEquals(0.95, trigger.getDouble("tenured"), 0.0);
+        assertEquals(10, trigger.getInt("sampleRate"));
+
+        List<RecordedEvent> drains = ofType(events, "Drain");
+        assertEquals(1, drains.size());
+        assertEquals(admitted.size(), drains.get(0).getLong("inFlight"));
+
+        List<RecordedEvent> collects = ofType(events, "Collect");
+        assertEquals(1, collects.size());
+        assertTrue(collects.get(0).getDuration().compareTo(Duration.ofMillis(20)) >= 0);
+
+        List<RecordedEvent> estimates = ofType(events, "Estimate");
+        assertEquals(1, estimates.size());
+        assertEquals(4000, estimates.get(0).getDuration("predictedUnavailability").toMillis());
+        assertEquals(50, estimates.get(0).getDuration("actualUnavailability").toMillis());
+
+        List<RecordedEvent> sheds = ofType(events, "Shed");
+        assertEquals(1, sheds.size());
+        assertEquals(shed.unavailabilityDuration, sheds.get(0).getDuration("unavailabilityDuration"));
+    }
+
+    @Test
+    public void nothingEmittedWhenDisabled() throws Exception {
+        for (String event : EVENTS) {
+            recording.disable(event);
+        }
+        recording.start();
+        shedThroughCollection(new ArrayList<>());
+        recording.stop();
+        recording.dump(dump);
+
+        assertEquals(0, gciEvents().size());
+    }
+
+    /**
+     * Admits requests until a heap check decides to collect. The collection runs inline, so another thread
+     * finishes the admitted requests once the caller is waiting on the drain.
+     */
+    private ShedResponse shedThroughCollection(List<ShedResponse> admitted) throws InterruptedException {
+        List<ShedResponse> inFlight = new CopyOnWriteArrayList<>();
+        inFlight.add(gci.before());
+        Thread caller = Thread.currentThread();
+        Thread finisher = new Thread(() -> {
+            while (caller.getState() != Thread.State.TIMED_WAITING) {
+                Thread.yield();
+            }
+            inFlight.forEach(gci::after);
+        });
+        finisher.start();
+
+        monitor.tenured = 0.95;
+        ShedResponse response;
+        while (!(response = gci.before()).shouldShed) {
+            inFlight.add(response);
+        }
+        finisher.join();
+        admitted.addAll(inFlight);
+        assertEquals(0, GarbageCollectorControlInterceptor.inFlight(gci.state.get()));
+        return response;
+    }
+
+    private List<RecordedEvent> gciEvents() throws IOException {
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().startsWith("com.danielfireman.gci."))
+                .collect(Collectors.toList());
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String type) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.danielfireman.gci." + type))
+                .collect(Collectors.toList());
+    }
+}
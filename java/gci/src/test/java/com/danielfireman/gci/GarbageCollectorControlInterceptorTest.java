@@ -0,0 +1,186 @@
+package com.danielfireman.gci;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.danielfireman.gci.GarbageCollectorControlInterceptor.ADMITTING;
+import static com.danielfireman.gci.GarbageCollectorControlInterceptor.inFlight;
+import static com.danielfireman.gci.GarbageCollectorControlInterceptor.phase;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GarbageCollectorControlInterceptorTest {
+
+    private FakeHeapMonitor monitor;
+    private List<Runnable> tasks;
+    private GarbageCollectorControlInterceptor gci;
+    private long nanos;
+
+    @Before
+    public void setUp() {
+        monitor = new FakeHeapMonitor();
+        tasks = new ArrayList<>();
+        gci = new GarbageCollectorControlInterceptor(
+                monitor,
+                () -> {
+                },
+                tasks::add,
+                new UnavailabilityDuration(Clock.systemUTC()),
+                Clock.systemUTC());
+        gci.nanoTime = () -> nanos;
+    }
+
+    @Test
+    public void afterTwiceIsHarmless() {
+        ShedResponse response = gci.before();
+        assertFalse(response.shouldShed);
+        assertEquals(1, inFlight(gci.state.get()));
+
+        gci.after(response);
+        gci.after(response);
+
+        long s = gci.state.get();
+        assertEquals(0, inFlight(s));
+        assertEquals(ADMITTING, phase(s));
+        assertTrue(gci.startCollection());
+        assertTrue(gci.before().shouldShed);
+    }
+
+    @Test
+    public void afterWithForeignResponseDoesNotCorruptState() {
+        gci.after(new ShedResponse(false, null, 0));
+
+        assertEquals(0, gci.state.get());
+        assertFalse(gci.before().shouldShed);
+    }
+
+    @Test
+    public void afterShedResponseIsIgnored() {
+        ShedResponse admitted = gci.before();
+        gci.startCollection();
+        ShedResponse shed = gci.before();
+        assertTrue(shed.shouldShed);
+
+        gci.after(shed);
+        assertEquals(1, inFlight(gci.state.get()));
+        gci.after(admitted);
+        assertEquals(0, inFlight(gci.state.get()));
+    }
+
+    @Test
+    public void retryAfterIsJittered() {
+        MutableClock clock = new MutableClock();
+        UnavailabilityDuration unavailability = new UnavailabilityDuration(clock);
+        unavailability.begin();
+        clock.millis += 4000;
+        unavailability.end();
+        gci = new GarbageCollectorControlInterceptor(monitor, () -> {
+        }, tasks::add, unavailability, clock);
+        gci.startCollection();
+
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            ShedResponse response = gci.before();
+            assertTrue(response.shouldShed);
+            long retry = response.unavailabilityDuration.toMillis();
+            assertTrue("retry " + retry, retry >= 4000 && retry < 6000);
+            seen.add(retry);
+        }
+        assertTrue(seen.size() > 1);
+    }
+
+    @Test
+    public void zeroRetryJitterDisablesJitter() {
+        for (int i = 0; i < 50; i++) {
+            assertEquals(300, gci.shedRequest(Duration.ofMillis(300), 0).unavailabilityDuration.toMillis());
+        }
+        // Estimates well under a second still get spread over at least one second.
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            long retry = gci.shedRequest(Duration.ofMillis(300), 0.1f).unavailabilityDuration.toMillis();
+            assertTrue("retry " + retry, retry >= 300 && retry < 1300);
+            seen.add(retry);
+        }
+        assertTrue(seen.size() > 1);
+    }
+
+    @Test
+    public void slowStartAfterIdleCollection() {
+        List<ShedResponse> peak = new ArrayList<>();
+        for (int i = 0; i < 40; i++) peak.add(gci.before());
+        peak.forEach(gci::after);
+
+        // Nothing in flight when the collection is decided, as with IdleCollectionScheduler.
+        assertTrue(gci.startCollection());
+        tasks.get(0).run();
+
+        assertEquals(10, admit(50));
+        nanos += TimeUnit.MILLISECONDS.toNanos(500);
+        assertEquals(15, admit(50));
+        nanos += TimeUnit.MILLISECONDS.toNanos(600);
+        assertEquals(50, admit(50));
+    }
+
+    @Test
+    public void noSlowStartWithoutTraffic() {
+        assertTrue(gci.startCollection());
+        tasks.get(0).run();
+
+        assertEquals(50, admit(50));
+    }
+
+    @Test
+    public void slowStartLimitIsClamped() {
+        long period = TimeUnit.SECONDS.toNanos(1);
+        assertEquals(10, GarbageCollectorControlInterceptor.slowStartLimit(40, period));
+        assertEquals(25, GarbageCollectorControlInterceptor.slowStartLimit(40, period / 2));
+        // Deadline further away than the period itself never drops below the floor.
+        assertEquals(10, GarbageCollectorControlInterceptor.slowStartLimit(40, 100 * period));
+        assertEquals(40, GarbageCollectorControlInterceptor.slowStartLimit(40, -period));
+        assertEquals(1, GarbageCollectorControlInterceptor.slowStartLimit(1, period));
+    }
+
+    private int admit(int requests) {
+        int admitted = 0;
+        for (int i = 0; i < requests; i++) {
+            if (!gci.before().shouldShed) admitted++;
+        }
+        return admitted;
+    }
+
+    static class MutableClock extends Clock {
+        long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.danielfireman.gci;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdleCollectionSchedulerTest {
+
+    private FakeHeapMonitor monitor;
+    private List<Runnable> tasks;
+    private GarbageCollectorControlInterceptor gci;
+    private IdleCollectionScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        monitor = new FakeHeapMonitor();
+        tasks = new ArrayList<>();
+        gci = new GarbageCollectorControlInterceptor(
+                monitor,
+                () -> {
+                },
+                tasks::add,
+                new UnavailabilityDuration(Clock.systemUTC()),
+                Clock.systemUTC());
+        scheduler = new IdleCollectionScheduler(gci, null, Duration.ofMillis(100), 0.6, 0.5);
+        // Warm up the arrival rate average.
+        tick(100);
+        tick(100);
+    }
+
+    @Test
+    public void quietPeriodTriggersCollection() {
+        monitor.tenured = 0.7;
+
+        assertTrue(tick(10));
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void busyPeriodDoesNotTrigger() {
+        monitor.tenured = 0.7;
+
+        assertFalse(tick(100));
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void noTenuredGrowthDoesNotTrigger() {
+        // Collection started by request traffic, finished between two ticks.
+        assertTrue(gci.startCollection());
+        tasks.remove(0).run();
+        // Live set alone above the idle threshold, Eden refilling.
+        monitor.tenured = 0.65;
+        monitor.young = 0.75;
+
+        assertFalse(tick(10));
+        assertTrue(tasks.isEmpty());
+
+        monitor.tenured = 0.8;
+        assertTrue(tick(10));
+    }
+
+    @Test
+    public void busyPeriodDoesNotReadHeap() {
+        monitor.tenured = 0.7;
+
+        assertFalse(tick(100));
+        assertEquals(0, monitor.reads);
+
+        // A finished collection is noticed even while busy, to refresh the tenured baseline.
+        assertTrue(gci.startCollection());
+        tasks.remove(0).run();
+        assertFalse(tick(100));
+        assertEquals(1, monitor.reads);
+        assertFalse(tick(100));
+        assertEquals(1, monitor.reads);
+    }
+
+    @Test
+    public void stopShutsDownOwnedSchedulerOnly() {
+        IdleCollectionScheduler owned = new IdleCollectionScheduler(gci);
+        owned.start();
+        owned.stop();
+        assertTrue(owned.scheduler.isShutdown());
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            IdleCollectionScheduler borrowed = new IdleCollectionScheduler(gci, executor, Duration.ofMillis(100), 0.6, 0.5);
+            borrowed.start();
+            borrowed.stop();
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void youngUsageAloneDoesNotTrigger() {
+        monitor.young = 0.95;
+
+        assertFalse(tick(10));
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void alreadyCollectingDoesNotTrigger() {
+        monitor.tenured = 0.7;
+        assertTrue(gci.startCollection());
+
+        assertFalse(tick(10));
+        assertEquals(1, tasks.size());
+    }
+
+    private boolean tick(int arrivals) {
+        gci.arrivals.add(arrivals);
+        return scheduler.check();
+    }
+}
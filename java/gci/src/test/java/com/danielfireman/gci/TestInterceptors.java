@@ -0,0 +1,53 @@
+package com.danielfireman.gci;
+
+import java.time.Clock;
+import java.util.concurrent.Executor;
+
+/**
+ * Builds real {@link GarbageCollectorControlInterceptor} instances for tests of the framework adapters,
+ * which can not reach its package private state. The heap is always reported as empty, so collections
+ * only start when tests ask for them.
+ *
+ * @author danielfireman
+ */
+public final class TestInterceptors {
+    private TestInterceptors() {
+    }
+
+    /**
+     * @return interceptor running collections inline, on the thread deciding them.
+     */
+    public static GarbageCollectorControlInterceptor newInterceptor() {
+        return newInterceptor(Runnable::run);
+    }
+
+    /**
+     * @param executor executor running collections. An executor which only queues tasks keeps the
+     *                 interceptor shedding until the queued collection is run.
+     */
+    public static GarbageCollectorControlInterceptor newInterceptor(Executor executor) {
+        return new GarbageCollectorControlInterceptor(
+                new FakeHeapMonitor(),
+                () -> {
+                },
+                executor,
+                new UnavailabilityDuration(Clock.systemUTC()),
+                Clock.systemUTC());
+    }
+
+    /**
+     * @return number of admitted requests which have not finished yet.
+     */
+    public static long inFlight(GarbageCollectorControlInterceptor gci) {
+        return GarbageCollectorControlInterceptor.inFlight(gci.state.get());
+    }
+
+    /**
+     * Starts a collection, as if the heap had gone above the shedding threshold.
+     *
+     * @return whether a new collection has been started.
+     */
+    public static boolean startCollection(GarbageCollectorControlInterceptor gci) {
+        return gci.startCollection();
+    }
+}